@@ -0,0 +1,323 @@
+package hudson.plugins.japex;
+
+import hudson.XmlFile;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Result;
+import org.w3c.dom.Element;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Index of which builds of a project recorded which Japex configurations,
+ * along with the arithmetic mean of each, so that a regression baseline
+ * can be chosen without probing the archive of every build.
+ *
+ * <p>
+ * Stored as <tt>japex-index.xml</tt> in the project directory.
+ */
+public final class BaselineIndex {
+    /**
+     * Configuration name to build number to the arithmetic mean of the drivers.
+     */
+    private Map<String,TreeMap<Integer,Double>> scores = new HashMap<String,TreeMap<Integer,Double>>();
+
+    /**
+     * Configurations whose result unit is time, where the smaller result is the better one.
+     */
+    private Set<String> lowerIsBetter = new HashSet<String>();
+
+    /**
+     * Finds the build to compute the regression of the given configuration against.
+     *
+     * @return null if there's no suitable build.
+     */
+    public AbstractBuild<?,?> findBaseline(AbstractBuild<?,?> build, String configName, BaselineMode mode, int pinnedBuild, int count) {
+        TreeMap<Integer,Double> builds = scores.get(configName);
+
+        if(mode==BaselineMode.PREVIOUS) {
+            AbstractBuild<?,?> prev = build.getPreviousNotFailedBuild();
+            if(prev==null)  return null;
+            if(builds!=null && builds.containsKey(prev.getNumber()))
+                return prev;
+            // not indexed, for example if updating the index failed. look at the archive instead
+            return new File(JapexPublisher.getJapexReport(prev),configName).exists() ? prev : null;
+        }
+
+        if(mode==BaselineMode.PINNED) {
+            if(pinnedBuild==build.getNumber())  return null;
+            AbstractBuild<?,?> pinned = build.getProject().getBuildByNumber(pinnedBuild);
+            if(pinned==null)    return null;
+            if(builds!=null && builds.containsKey(pinnedBuild))
+                return pinned;
+            // an old release build may have been left out of the index. look at the archive instead
+            return new File(JapexPublisher.getJapexReport(pinned),configName).exists() ? pinned : null;
+        }
+
+        if(builds==null)    return null;
+
+        switch (mode) {
+        case LAST_WITH_CONFIG:
+            List<AbstractBuild<?,?>> last = getCandidates(build, builds, 1);
+            return last.isEmpty() ? null : last.get(0);
+        case BEST_OF_LAST:
+        case MEDIAN_OF_LAST:
+            List<AbstractBuild<?,?>> candidates = getCandidates(build, builds, Math.max(count,1));
+            List<Integer> numbers = new ArrayList<Integer>();
+            for (AbstractBuild<?,?> b : candidates)
+                numbers.add(b.getNumber());
+            Integer n = pick(numbers, builds, lowerIsBetter.contains(configName), mode==BaselineMode.BEST_OF_LAST);
+            return n==null ? null : build.getProject().getBuildByNumber(n);
+        default:
+            throw new AssertionError(mode);
+        }
+    }
+
+    /**
+     * Gets up to the given number of the latest not-failed builds before the given build
+     * that recorded the configuration, newest first.
+     */
+    private List<AbstractBuild<?,?>> getCandidates(AbstractBuild<?,?> build, TreeMap<Integer,Double> builds, int count) {
+        List<AbstractBuild<?,?>> r = new ArrayList<AbstractBuild<?,?>>();
+        for (Integer n : getEarlierBuilds(builds, build.getNumber())) {
+            AbstractBuild<?,?> b = build.getProject().getBuildByNumber(n);
+            if(b==null || b.getResult()==null || b.getResult().isWorseThan(Result.UNSTABLE))
+                continue;   // deleted, still running, or failed
+            r.add(b);
+            if(r.size()==count)
+                break;
+        }
+        return r;
+    }
+
+    /**
+     * Gets the numbers of the indexed builds older than the given build number, newest first.
+     */
+    /*package*/ static List<Integer> getEarlierBuilds(TreeMap<Integer,Double> builds, int number) {
+        List<Integer> r = new ArrayList<Integer>(builds.headMap(number).keySet());
+        Collections.reverse(r);
+        return r;
+    }
+
+    /**
+     * Picks the build with the best or the median score.
+     *
+     * @return null if there's no candidate.
+     */
+    /*package*/ static Integer pick(List<Integer> candidates, final SortedMap<Integer,Double> scores, final boolean lowerIsBetter, boolean best) {
+        if(candidates.isEmpty())    return null;
+
+        // sort from the worst score to the best score
+        List<Integer> sorted = new ArrayList<Integer>(candidates);
+        Collections.sort(sorted, new Comparator<Integer>() {
+            public int compare(Integer lhs, Integer rhs) {
+                int r = scores.get(lhs).compareTo(scores.get(rhs));
+                return lowerIsBetter ? -r : r;
+            }
+        });
+
+        if(best)
+            return sorted.get(sorted.size()-1);
+        return sorted.get((sorted.size()-1)/2);
+    }
+
+    /**
+     * Adds the archived report of the given configuration to the index.
+     */
+    private void add(String configName, int buildNumber, Element root) {
+        double total = 0;
+        int n = 0;
+        for (Element driver : StabilityReport.getChildren(root,"driver")) {
+            Double mean = StabilityReport.getNumber(driver,"resultAritMean");
+            if(mean!=null) {
+                total += mean;
+                n++;
+            }
+        }
+
+        TreeMap<Integer,Double> builds = scores.get(configName);
+        if(builds==null) {
+            builds = new TreeMap<Integer,Double>();
+            scores.put(configName,builds);
+        }
+        builds.put(buildNumber, n==0 ? 0 : total/n);
+
+        List<Element> unit = StabilityReport.getChildren(root,"resultUnit");
+        if(!unit.isEmpty() && TIME_UNITS.contains(unit.get(0).getTextContent().trim()))
+            lowerIsBetter.add(configName);
+    }
+
+    /**
+     * Adds all the reports archived by the given build to the index.
+     *
+     * @return the number of reports added.
+     */
+    private int addArchive(AbstractBuild<?,?> build) {
+        File[] files = JapexPublisher.getJapexReport(build).listFiles(REPORT_FILTER);
+        if(files==null)     return 0;
+
+        int added = 0;
+        for (File file : files) {
+            try {
+                Element root = StabilityReport.parseXml(file);
+                String configFile = StabilityReport.getText(root,"configFile");
+                if(configFile==null)
+                    continue;
+                add(configFile.replace('/','.'), build.getNumber(), root);
+                added++;
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to index "+file, e);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Drops the builds that no longer exist, and the oldest builds beyond {@link #MAX_BUILDS}.
+     */
+    private void prune(AbstractProject<?,?> project, int pinnedBuild) {
+        for (Iterator<Map.Entry<String,TreeMap<Integer,Double>>> itr = scores.entrySet().iterator(); itr.hasNext();) {
+            Map.Entry<String,TreeMap<Integer,Double>> e = itr.next();
+            TreeMap<Integer,Double> builds = e.getValue();
+            for (Iterator<Integer> n = builds.keySet().iterator(); n.hasNext();) {
+                if(project.getBuildByNumber(n.next())==null)
+                    n.remove();
+            }
+            trim(builds, MAX_BUILDS, pinnedBuild);
+            if(builds.isEmpty()) {
+                itr.remove();
+                lowerIsBetter.remove(e.getKey());
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest builds until there are at most the given number of them,
+     * except the pinned build.
+     */
+    /*package*/ static void trim(TreeMap<Integer,Double> builds, int max, int pinnedBuild) {
+        List<Integer> numbers = new ArrayList<Integer>(builds.keySet());
+        for (int i=0; i<numbers.size() && builds.size()>max; i++) {
+            if(numbers.get(i)!=pinnedBuild)
+                builds.remove(numbers.get(i));
+        }
+    }
+
+    /**
+     * Records the reports archived by a build.
+     *
+     * @param reports
+     *      Configuration name to the archived report file.
+     * @param pinnedBuild
+     *      Build that's kept in the index regardless of its age, or 0.
+     */
+    public static void record(AbstractProject<?,?> project, int buildNumber, Map<String,File> reports, int pinnedBuild) throws IOException {
+        synchronized (getLock(project)) {
+            BaselineIndex index = load(project);
+            for (Map.Entry<String,File> e : reports.entrySet()) {
+                try {
+                    index.add(e.getKey(), buildNumber, StabilityReport.parseXml(e.getValue()));
+                } catch (IOException x) {
+                    LOGGER.log(Level.WARNING, "Failed to index "+e.getValue(), x);
+                }
+            }
+            index.prune(project, pinnedBuild);
+            getFile(project).write(index);
+        }
+    }
+
+    /**
+     * Loads the index of the given project, or builds it from the archived reports
+     * of the last {@link #MAX_BUILDS} builds if the project was recorded by an older
+     * version of the plugin.
+     */
+    public static BaselineIndex load(AbstractProject<?,?> project) throws IOException {
+        synchronized (getLock(project)) {
+            XmlFile f = getFile(project);
+            if(f.exists())
+                return (BaselineIndex)f.read();
+
+            BaselineIndex index = new BaselineIndex();
+            int scanned = 0;
+            for (AbstractBuild<?,?> build : project.getBuilds()) {
+                if(scanned++==MAX_BUILDS)
+                    break;
+                index.addArchive(build);
+            }
+            f.write(index);
+            return index;
+        }
+    }
+
+    /**
+     * Adds the reports archived by the given build to the index of its project,
+     * such as when an old build is pinned as the baseline.
+     *
+     * @return the number of reports added. 0 if the build has no Japex report.
+     */
+    public static int index(AbstractBuild<?,?> build) throws IOException {
+        AbstractProject<?,?> project = build.getProject();
+        synchronized (getLock(project)) {
+            BaselineIndex index = load(project);
+            int added = index.addArchive(build);
+            if(added>0)
+                getFile(project).write(index);
+            return added;
+        }
+    }
+
+    private static XmlFile getFile(AbstractProject<?,?> project) {
+        return new XmlFile(new File(project.getRootDir(),"japex-index.xml"));
+    }
+
+    /**
+     * Gets the object that guards the index of the given project.
+     */
+    private static Object getLock(AbstractProject<?,?> project) {
+        String key = project.getRootDir().getPath();
+        Object lock = LOCKS.get(key);
+        if(lock==null) {
+            Object newLock = new Object();
+            lock = LOCKS.putIfAbsent(key,newLock);
+            if(lock==null)
+                lock = newLock;
+        }
+        return lock;
+    }
+
+    private static final ConcurrentMap<String,Object> LOCKS = new ConcurrentHashMap<String,Object>();
+
+    /**
+     * Number of builds per configuration kept in the index.
+     */
+    /*package*/ static final int MAX_BUILDS = 100;
+
+    private static final Set<String> TIME_UNITS = new HashSet<String>(Arrays.asList(
+        "ns", "us", "ms", "s", "sec", "seconds", "milliseconds"));
+
+    private static final FileFilter REPORT_FILTER = new FileFilter() {
+        public boolean accept(File f) {
+            return f.getName().endsWith(".xml");
+        }
+    };
+
+    private static final Logger LOGGER = Logger.getLogger(BaselineIndex.class.getName());
+}
@@ -0,0 +1,50 @@
+package hudson.plugins.japex;
+
+/**
+ * How {@link JapexPublisher} chooses the build to compute the regression against.
+ */
+public enum BaselineMode {
+    /**
+     * The previous not-failed build, if it recorded the same configuration.
+     */
+    PREVIOUS("Previous not-failed build"),
+    /**
+     * The last not-failed build that recorded the same configuration.
+     */
+    LAST_WITH_CONFIG("Last build with the same report"),
+    /**
+     * A fixed build, such as a release.
+     */
+    PINNED("Pinned build"),
+    /**
+     * The best performing build among the last N builds.
+     */
+    BEST_OF_LAST("Best of the last builds"),
+    /**
+     * The build with the median performance among the last N builds.
+     */
+    MEDIAN_OF_LAST("Median of the last builds");
+
+    private final String displayName;
+
+    BaselineMode(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Parses the form value, falling back to {@link #PREVIOUS} for configurations
+     * saved by older versions.
+     */
+    public static BaselineMode fromString(String s) {
+        if(s!=null) {
+            for (BaselineMode m : values())
+                if(m.name().equals(s))
+                    return m;
+        }
+        return PREVIOUS;
+    }
+}
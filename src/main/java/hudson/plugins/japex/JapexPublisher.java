@@ -34,6 +34,11 @@ import javax.xml.transform.stream.StreamSource;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import net.sf.json.JSONObject;
 import org.kohsuke.stapler.QueryParameter;
 
@@ -51,6 +56,29 @@ public class JapexPublisher extends Recorder {
     private boolean trackRegressions;
     private double regressionThreshold;
     private String regressionAddress;
+    /**
+     * If true, a regression whose confidence interval overlaps the baseline
+     * is reported as inconclusive instead of making the build unstable.
+     */
+    private boolean inconclusiveOnOverlap;
+    /**
+     * Half width of the confidence interval, in percentage of the mean,
+     * beyond which a test case is considered flaky. 0 to use the default.
+     */
+    private double noiseThreshold;
+
+    /**
+     * Name of the {@link BaselineMode}. Null for configurations saved by older versions.
+     */
+    private String baselineMode;
+    /**
+     * Build number used with {@link BaselineMode#PINNED}.
+     */
+    private int baselineBuild;
+    /**
+     * Number of builds looked at by {@link BaselineMode#BEST_OF_LAST} and {@link BaselineMode#MEDIAN_OF_LAST}.
+     */
+    private int baselineCount;
 
     public String getIncludes() {
         return includes;
@@ -84,6 +112,46 @@ public class JapexPublisher extends Recorder {
         this.regressionAddress = Util.fixEmpty(Util.fixNull(regressionAddress).trim());
     }
 
+    public boolean isInconclusiveOnOverlap() {
+        return inconclusiveOnOverlap;
+    }
+
+    public void setInconclusiveOnOverlap(boolean inconclusiveOnOverlap) {
+        this.inconclusiveOnOverlap = inconclusiveOnOverlap;
+    }
+
+    public String getBaselineMode() {
+        return BaselineMode.fromString(baselineMode).name();
+    }
+
+    public void setBaselineMode(String baselineMode) {
+        this.baselineMode = baselineMode;
+    }
+
+    public int getBaselineBuild() {
+        return baselineBuild;
+    }
+
+    public void setBaselineBuild(int baselineBuild) {
+        this.baselineBuild = baselineBuild;
+    }
+
+    public int getBaselineCount() {
+        return baselineCount>0 ? baselineCount : DEFAULT_BASELINE_COUNT;
+    }
+
+    public void setBaselineCount(int baselineCount) {
+        this.baselineCount = baselineCount;
+    }
+
+    public double getNoiseThreshold() {
+        return noiseThreshold>0 ? noiseThreshold : DEFAULT_NOISE_THRESHOLD;
+    }
+
+    public void setNoiseThreshold(double noiseThreshold) {
+        this.noiseThreshold = noiseThreshold;
+    }
+
     @Override
     public boolean perform(AbstractBuild<?,?> build, Launcher launcher, BuildListener listener) throws IOException, InterruptedException {
         if (!(build instanceof Build)) return true;
@@ -107,8 +175,18 @@ public class JapexPublisher extends Recorder {
         DirectoryScanner ds = fs.getDirectoryScanner(antProject);
         String[] includedFiles = ds.getIncludedFiles();
 
-        File prevDir = getPreviousJapexReport(build);
+        BaselineIndex index;
+        try {
+            index = BaselineIndex.load(build.getProject());
+        } catch (IOException e) {
+            e.printStackTrace(listener.error("Failed to load the japex baseline index"));
+            index = new BaselineIndex();
+        }
+        BaselineMode mode = BaselineMode.fromString(baselineMode);
         boolean hasRegressionReport = false;
+        List<String> inconclusiveConfigs = new ArrayList<String>();
+        Map<String,Integer> baselines = new TreeMap<String,Integer>();
+        Map<String,File> archived = new HashMap<String,File>();
 
         for (String f : includedFiles) {
             File file = new File(ds.getBasedir(),f);
@@ -132,11 +210,33 @@ public class JapexPublisher extends Recorder {
             }
 
             // archive the report file
-            Util.copyFile(file,new File(outDir,configName));
+            File archive = new File(outDir,configName);
+            Util.copyFile(file,archive);
+            archived.put(configName,archive);
+
+            // analyze the noise
+            StabilityReport stability = null;
+            try {
+                stability = StabilityReport.parse(file);
+                stability.save(StabilityReport.getFile(outDir,configName));
+                for (TestCaseStats s : stability.getFlakyTestCases(getNoiseThreshold()))
+                    listener.getLogger().println("Unstable benchmark: "+s.getDriverName()+'/'+s.getTestCaseName()
+                            +" (stability score "+s.getStabilityScore()+")");
+            } catch (IOException e) {
+                e.printStackTrace(listener.error("Failed to compute japex stability report for "+configName));
+            }
 
             // compute the regression
+            AbstractBuild<?,?> baseline = index.findBaseline(build,configName,mode,baselineBuild,getBaselineCount());
+            if(baseline==null) {
+                listener.getLogger().println("No baseline build to compute the regression of "+configName+" against");
+                continue;
+            }
+            File prevDir = getJapexReport(baseline);
             File previousConfig = new File(prevDir,configName);
             if(previousConfig.exists()) {
+                listener.getLogger().println("Computing the regression of "+configName+" against "+baseline.getDisplayName());
+                baselines.put(configName,baseline.getNumber());
                 try {
                     File regressionFile = new File(outDir, configName + ".regression");
 
@@ -148,6 +248,12 @@ public class JapexPublisher extends Recorder {
                     hasRegressionReport = true;
 
                     if(trackRegressions && regd.checkThreshold(new StreamSource(regressionFile))) {
+                        if(inconclusiveOnOverlap && isWithinNoise(stability,StabilityReport.getFile(prevDir,configName),regressionFile,listener)) {
+                            listener.getLogger().println("Regression to "+configName+" is inconclusive; it is within the noise of the baseline");
+                            inconclusiveConfigs.add(configName);
+                            continue;
+                        }
+
                         // regression detected
                         listener.getLogger().println("Regression detected to "+configName);
                         listener.getLogger().println("Notifying "+regressionAddress);
@@ -163,12 +269,39 @@ public class JapexPublisher extends Recorder {
             }
         }
 
+        try {
+            BaselineIndex.record(build.getProject(),build.getNumber(),archived,
+                    mode==BaselineMode.PINNED ? baselineBuild : 0);
+        } catch (IOException e) {
+            e.printStackTrace(listener.error("Failed to update the japex baseline index"));
+        }
+
         if(hasRegressionReport)
-            build.getActions().add(new JapexReportBuildAction((Build)build)); // Type checked above
+            build.getActions().add(new JapexReportBuildAction((Build)build,inconclusiveConfigs,baselines)); // Type checked above
 
         return true;
     }
 
+    /**
+     * Checks if the difference between the current result and the baseline is within
+     * the confidence intervals of both, for every test case that went over the threshold.
+     *
+     * <p>
+     * If the noise information can't be read, the regression is treated as conclusive,
+     * so that a broken file never turns off the regression tracking.
+     */
+    private boolean isWithinNoise(StabilityReport current, File baselineFile, File regressionFile, BuildListener listener) {
+        if(current==null)   return false;
+        try {
+            StabilityReport baseline = StabilityReport.load(baselineFile);
+            return baseline!=null && current.isIndistinguishableFrom(baseline,
+                    StabilityReport.getRegressedTestCases(regressionFile,regressionThreshold));
+        } catch (IOException e) {
+            e.printStackTrace(listener.error("Failed to compare the noise against "+baselineFile));
+            return false;
+        }
+    }
+
     private void sendNotification(AbstractBuild<?,?> build, BuildListener listener, String payload) {
         try {
             Message msg = new MimeMessage(Mailer.descriptor().createSession());
@@ -185,15 +318,6 @@ public class JapexPublisher extends Recorder {
         }
     }
 
-    /**
-     * Computes the archive of the last Japex run.
-     */
-    private File getPreviousJapexReport(AbstractBuild<?,?> build) {
-        build = build.getPreviousNotFailedBuild();
-        if(build==null)     return null;
-        else    return getJapexReport(build);
-    }
-
     /**
      * Gets the directory to store report files
      */
@@ -215,6 +339,16 @@ public class JapexPublisher extends Recorder {
         return DESCRIPTOR;
     }
 
+    /**
+     * Noise threshold used when none is configured.
+     */
+    /*package*/ static final double DEFAULT_NOISE_THRESHOLD = 5;
+
+    /**
+     * Number of builds to choose the baseline from when none is configured.
+     */
+    private static final int DEFAULT_BASELINE_COUNT = 5;
+
     @Extension
     public static final DescriptorImpl DESCRIPTOR = new DescriptorImpl();
 
@@ -246,6 +380,24 @@ public class JapexPublisher extends Recorder {
                     throw new FormException("Invalid e-mail format",e,"japex.trackRegressions");
                 }
             }
+            if(BaselineMode.fromString(pub.getBaselineMode())==BaselineMode.PINNED) {
+                // make sure the pinned build exists and has reports to compare against
+                if(pub.getBaselineBuild()<=0)
+                    throw new FormException("No baseline build number is set","japex.baselineBuild");
+                AbstractProject<?,?> project = req.findAncestorObject(AbstractProject.class);
+                if(project!=null) {
+                    AbstractBuild<?,?> pinned = project.getBuildByNumber(pub.getBaselineBuild());
+                    if(pinned==null)
+                        throw new FormException("No such build: #"+pub.getBaselineBuild(),"japex.baselineBuild");
+                    try {
+                        // old builds may not be in the index yet
+                        if(BaselineIndex.index(pinned)==0)
+                            throw new FormException("Build #"+pub.getBaselineBuild()+" has no Japex report","japex.baselineBuild");
+                    } catch (IOException e) {
+                        throw new FormException("Failed to index build #"+pub.getBaselineBuild(),e,"japex.baselineBuild");
+                    }
+                }
+            }
             return pub;
         }
 
@@ -254,6 +406,13 @@ public class JapexPublisher extends Recorder {
             return Project.class.isAssignableFrom(jobType);
         }
 
+        /**
+         * Lists the choices of the regression baseline for the configuration page.
+         */
+        public BaselineMode[] getBaselineModes() {
+            return BaselineMode.values();
+        }
+
         //
         // web methods
         //
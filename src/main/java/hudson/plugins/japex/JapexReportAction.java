@@ -60,11 +60,11 @@ public class JapexReportAction implements Action, StaplerProxy {
         final int buildNumber;
         final TrendReport singleton;
 
-        public Parsed(Build build, Map<String,List<TestSuiteReport>> reports) {
+        public Parsed(Build build, Map<String,List<TestSuiteReport>> reports, Map<String,Build> latestBuilds) {
             this.buildNumber = build.getNumber();
             for (Entry<String,List<TestSuiteReport>> e : reports.entrySet()) {
                 this.reports.put(e.getKey(),
-                    new TrendReport(project, e.getKey(), new HudsonChartGenerator(e.getValue(),build)));
+                    new TrendReport(project, e.getKey(), latestBuilds.get(e.getKey()), new HudsonChartGenerator(e.getValue(),build)));
             }
             if(reports.size()==1)
                 singleton = this.reports.values().iterator().next();
@@ -124,6 +124,8 @@ public class JapexReportAction implements Action, StaplerProxy {
 
         // parse reports
         Map<String,List<TestSuiteReport>> reports = new HashMap<String,List<TestSuiteReport>>();
+        // newest build that recorded each configuration
+        Map<String,Build> latestBuilds = new HashMap<String,Build>();
         for (Build build : project.getBuilds()) {
             File dir = JapexPublisher.getJapexReport(build);
             File[] files = dir.listFiles(REPORT_FILTER);
@@ -137,6 +139,7 @@ public class JapexReportAction implements Action, StaplerProxy {
                         if(reportList==null) {
                             reportList = new ArrayList<TestSuiteReport>();
                             reports.put(configName,reportList);
+                            latestBuilds.put(configName,build);
                         }
 
                         reportList.add(rpt);
@@ -154,7 +157,7 @@ public class JapexReportAction implements Action, StaplerProxy {
             }
         }
 
-        Parsed parsed = new Parsed(lb,reports);
+        Parsed parsed = new Parsed(lb,reports,latestBuilds);
 
         cache = new WeakReference<Parsed>(parsed);
 
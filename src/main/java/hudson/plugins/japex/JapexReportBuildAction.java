@@ -10,6 +10,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * {@link Action} contributed to a {@link Build} to display
@@ -20,8 +21,26 @@ import java.util.List;
 public class JapexReportBuildAction implements Action {
     public final Build owner;
 
+    /**
+     * Configurations whose regression was within the noise, and thus didn't fail the build.
+     * Null when loaded from a build recorded by older versions.
+     */
+    private final List<String> inconclusiveConfigs;
+
+    /**
+     * Configuration name to the number of the build its regression was computed against.
+     * Null when loaded from a build recorded by older versions.
+     */
+    private final Map<String,Integer> baselines;
+
     public JapexReportBuildAction(Build owner) {
+        this(owner,Collections.<String>emptyList(),Collections.<String,Integer>emptyMap());
+    }
+
+    public JapexReportBuildAction(Build owner, List<String> inconclusiveConfigs, Map<String,Integer> baselines) {
         this.owner = owner;
+        this.inconclusiveConfigs = inconclusiveConfigs;
+        this.baselines = baselines;
     }
 
     public Build getOwner() {
@@ -58,6 +77,26 @@ public class JapexReportBuildAction implements Action {
         return urls;
     }
 
+    /**
+     * Gets the configurations whose regression was inconclusive.
+     * @return can be empty but never null.
+     */
+    public List<String> getInconclusiveConfigs() {
+        if(inconclusiveConfigs==null)
+            return Collections.emptyList();
+        return inconclusiveConfigs;
+    }
+
+    /**
+     * Gets the build number each configuration's regression was computed against.
+     * @return can be empty but never null.
+     */
+    public Map<String,Integer> getBaselines() {
+        if(baselines==null)
+            return Collections.emptyMap();
+        return baselines;
+    }
+
     private static final FileFilter REGRESSION_FILTER = new FileFilter() {
         public boolean accept(File f) {
             return f.getName().endsWith(".regression");
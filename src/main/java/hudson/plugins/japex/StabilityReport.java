@@ -0,0 +1,221 @@
+package hudson.plugins.japex;
+
+import hudson.XmlFile;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Noise and stability analysis of one Japex report.
+ *
+ * <p>
+ * Japex records the mean and the standard deviation of the result when
+ * a driver is run more than once (<tt>japex.runsPerDriver</tt>), so this
+ * is computed from those parameters. Unless <tt>japex.includeWarmupRun</tt>
+ * is set, the first run is a warmup that isn't counted. Test cases that were
+ * only counted once carry no noise information and are left out.
+ */
+public final class StabilityReport {
+    private final List<TestCaseStats> testCases;
+
+    public StabilityReport(List<TestCaseStats> testCases) {
+        this.testCases = testCases;
+    }
+
+    /**
+     * @return can be empty but never null.
+     */
+    public List<TestCaseStats> getTestCases() {
+        if(testCases==null)     return Collections.emptyList();
+        return testCases;
+    }
+
+    /**
+     * Gets the test cases whose results are too noisy to be trusted.
+     *
+     * @param noiseThreshold
+     *      Test cases whose confidence interval reaches further than &plusmn;this percentage
+     *      of the mean are considered flaky.
+     */
+    public List<TestCaseStats> getFlakyTestCases(double noiseThreshold) {
+        List<TestCaseStats> r = new ArrayList<TestCaseStats>();
+        for (TestCaseStats s : getTestCases())
+            if(s.isFlaky(noiseThreshold))
+                r.add(s);
+        return r;
+    }
+
+    /**
+     * Finds the statistics of the given test case.
+     *
+     * @return null if the test case has no noise information.
+     */
+    public TestCaseStats getTestCase(String driverName, String testCaseName) {
+        for (TestCaseStats s : getTestCases())
+            if(s.getDriverName().equals(driverName) && s.getTestCaseName().equals(testCaseName))
+                return s;
+        return null;
+    }
+
+    /**
+     * Checks if the difference from the given baseline is within the noise,
+     * that is, the confidence interval of every regressed test case overlaps that of the baseline.
+     *
+     * @param regressed
+     *      Regressed test cases, as returned from {@link #getRegressedTestCases(File, double)}.
+     * @return false if any of the regressed test cases has no noise information,
+     *      or if there's no regressed test case to begin with.
+     */
+    public boolean isIndistinguishableFrom(StabilityReport baseline, List<String[]> regressed) {
+        if(regressed.isEmpty())
+            return false;
+        for (String[] tc : regressed) {
+            TestCaseStats s = getTestCase(tc[0],tc[1]);
+            TestCaseStats b = baseline.getTestCase(tc[0],tc[1]);
+            if(s==null || b==null || !s.overlaps(b))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lists the test cases whose difference in the Japex regression report is beyond the threshold.
+     *
+     * @return
+     *      pairs of the driver name and the test case name.
+     */
+    public static List<String[]> getRegressedTestCases(File regressionReport, double threshold) throws IOException {
+        List<String[]> r = new ArrayList<String[]>();
+        Element root = parseXml(regressionReport);
+        for (Element driver : getChildren(root,"driver")) {
+            for (Element testCase : getChildren(driver,"testCase")) {
+                for (Node n=testCase.getFirstChild(); n!=null; n=n.getNextSibling()) {
+                    if(n instanceof Element && n.getLocalName().endsWith("DiffAsPercentage")) {
+                        Double diff = getNumber(testCase,n.getLocalName());
+                        if(diff==null || Math.abs(diff)>threshold)
+                            r.add(new String[]{driver.getAttribute("name"),testCase.getAttribute("name")});
+                        break;
+                    }
+                }
+            }
+        }
+        return r;
+    }
+
+    public void save(File f) throws IOException {
+        new XmlFile(f).write(this);
+    }
+
+    /**
+     * Loads the report saved by {@link #save(File)}.
+     *
+     * @return null if the file doesn't exist.
+     */
+    public static StabilityReport load(File f) throws IOException {
+        XmlFile xml = new XmlFile(f);
+        if(!xml.exists())   return null;
+        return (StabilityReport)xml.read();
+    }
+
+    /**
+     * Gets the file that stores the stability report of the given configuration.
+     */
+    static File getFile(File japexDir, String configName) {
+        return new File(japexDir, configName+".stability");
+    }
+
+    /**
+     * Computes the stability report from a Japex report XML file.
+     */
+    public static StabilityReport parse(File report) throws IOException {
+        Element root = parseXml(report);
+        List<TestCaseStats> r = new ArrayList<TestCaseStats>();
+        for (Element driver : getChildren(root,"driver")) {
+            for (Element testCase : getChildren(driver,"testCase")) {
+                Double mean = getNumber(testCase,"resultValue");
+                Double stddev = getNumber(testCase,"resultValueStddev");
+                // these parameters can be set at any level
+                Double runsPerDriver = getNumber(testCase,"runsPerDriver");
+                if(runsPerDriver==null)  runsPerDriver = getNumber(driver,"runsPerDriver");
+                if(runsPerDriver==null)  runsPerDriver = getNumber(root,"runsPerDriver");
+                String includeWarmupRun = getText(testCase,"includeWarmupRun");
+                if(includeWarmupRun==null)  includeWarmupRun = getText(driver,"includeWarmupRun");
+                if(includeWarmupRun==null)  includeWarmupRun = getText(root,"includeWarmupRun");
+
+                if(mean==null || stddev==null || runsPerDriver==null)
+                    continue;   // no noise information
+
+                // unless told otherwise, Japex discards the first run as the warmup
+                int runs = runsPerDriver.intValue();
+                if(!Boolean.valueOf(includeWarmupRun))
+                    runs--;
+                if(runs<2)
+                    continue;   // no noise information
+
+                r.add(new TestCaseStats(driver.getAttribute("name"), testCase.getAttribute("name"),
+                        mean, stddev, runs));
+            }
+        }
+        return new StabilityReport(r);
+    }
+
+    /**
+     * Parses a report file. Since the file comes from the workspace,
+     * DOCTYPEs and external entities are rejected.
+     */
+    /*package*/ static Element parseXml(File report) throws IOException {
+        try {
+            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            dbf.setNamespaceAware(true);
+            dbf.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            dbf.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            dbf.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            dbf.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            dbf.setXIncludeAware(false);
+            dbf.setExpandEntityReferences(false);
+            return dbf.newDocumentBuilder().parse(report).getDocumentElement();
+        } catch (SAXException e) {
+            IOException x = new IOException("Failed to parse " + report);
+            x.initCause(e);
+            throw x;
+        } catch (ParserConfigurationException e) {
+            IOException x = new IOException("Failed to parse " + report);
+            x.initCause(e);
+            throw x;
+        }
+    }
+
+    /*package*/ static List<Element> getChildren(Element parent, String localName) {
+        List<Element> r = new ArrayList<Element>();
+        for (Node n=parent.getFirstChild(); n!=null; n=n.getNextSibling()) {
+            if(n instanceof Element && localName.equals(n.getLocalName()))
+                r.add((Element)n);
+        }
+        return r;
+    }
+
+    /*package*/ static String getText(Element parent, String localName) {
+        List<Element> e = getChildren(parent,localName);
+        if(e.isEmpty())     return null;
+        return e.get(0).getTextContent().trim();
+    }
+
+    /*package*/ static Double getNumber(Element parent, String localName) {
+        String text = getText(parent,localName);
+        if(text==null)  return null;
+        try {
+            return Double.valueOf(text);
+        } catch (NumberFormatException x) {
+            return null;
+        }
+    }
+}
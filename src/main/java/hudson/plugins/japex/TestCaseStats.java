@@ -0,0 +1,150 @@
+package hudson.plugins.japex;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Noise statistics of one test case in one Japex report,
+ * computed from the result of each run of the driver.
+ */
+public final class TestCaseStats {
+    private final String driverName;
+    private final String testCaseName;
+    /**
+     * Mean of the result values across all runs.
+     */
+    private final double mean;
+    /**
+     * Sample standard deviation of the result values across all runs.
+     */
+    private final double stddev;
+    /**
+     * Number of runs.
+     */
+    private final int runs;
+
+    public TestCaseStats(String driverName, String testCaseName, double mean, double stddev, int runs) {
+        this.driverName = driverName;
+        this.testCaseName = testCaseName;
+        this.mean = mean;
+        this.stddev = stddev;
+        this.runs = runs;
+    }
+
+    public String getDriverName() {
+        return driverName;
+    }
+
+    public String getTestCaseName() {
+        return testCaseName;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getStddev() {
+        return stddev;
+    }
+
+    public double getVariance() {
+        return stddev*stddev;
+    }
+
+    public int getRuns() {
+        return runs;
+    }
+
+    /**
+     * Checks if the confidence interval reaches further than &plusmn;the given percentage
+     * of the mean, that is, if its half width is more than that percentage of the mean.
+     */
+    public boolean isFlaky(double noiseThreshold) {
+        return getRelativeHalfWidth()*100 > noiseThreshold;
+    }
+
+    /**
+     * Half width of the 95% confidence interval of the mean.
+     */
+    public double getHalfWidth() {
+        return tValue(runs-1)*stddev/Math.sqrt(runs);
+    }
+
+    public double getConfidenceLow() {
+        return mean-getHalfWidth();
+    }
+
+    public double getConfidenceHigh() {
+        return mean+getHalfWidth();
+    }
+
+    /**
+     * Half width of the confidence interval relative to the mean.
+     */
+    public double getRelativeHalfWidth() {
+        if(mean==0)     return stddev==0 ? 0 : Double.POSITIVE_INFINITY;
+        return getHalfWidth()/Math.abs(mean);
+    }
+
+    /**
+     * Mean, rounded for display.
+     */
+    public String getMeanString() {
+        return format(mean);
+    }
+
+    /**
+     * Standard deviation, rounded for display.
+     */
+    public String getStddevString() {
+        return format(stddev);
+    }
+
+    /**
+     * Confidence interval, rounded for display.
+     */
+    public String getConfidenceIntervalString() {
+        return format(getConfidenceLow())+" - "+format(getConfidenceHigh());
+    }
+
+    /**
+     * Stability score between 0 (pure noise) and 100 (perfectly repeatable).
+     */
+    public int getStabilityScore() {
+        return (int)Math.round(100*Math.max(0,1-getRelativeHalfWidth()));
+    }
+
+    /**
+     * Checks if the confidence intervals of two results overlap, meaning
+     * the difference between them can't be told apart from noise.
+     */
+    public boolean overlaps(TestCaseStats that) {
+        return getConfidenceLow()<=that.getConfidenceHigh() && that.getConfidenceLow()<=getConfidenceHigh();
+    }
+
+    /**
+     * Rounds a number to 4 significant digits.
+     */
+    private static String format(double d) {
+        if(Double.isNaN(d) || Double.isInfinite(d))
+            return String.valueOf(d);
+        return new BigDecimal(d).round(new MathContext(4)).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Two-sided 95% critical value of Student's t distribution.
+     */
+    private static double tValue(int degreesOfFreedom) {
+        if(degreesOfFreedom<1)
+            return Double.POSITIVE_INFINITY;
+        if(degreesOfFreedom<=T_TABLE.length)
+            return T_TABLE[degreesOfFreedom-1];
+        return 1.960;
+    }
+
+    private static final double[] T_TABLE = {
+        12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+         2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+         2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+    };
+}
@@ -1,6 +1,7 @@
 package hudson.plugins.japex;
 
 import com.sun.japex.report.MeanMode;
+import hudson.model.Build;
 import hudson.model.ModelObject;
 import hudson.model.Project;
 import hudson.util.ChartUtil;
@@ -8,8 +9,13 @@ import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
 import java.io.IOException;
+import java.io.File;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Represents a trend report.
@@ -22,15 +28,20 @@ public class TrendReport implements ModelObject {
 
     private final String configName;
     private final Project project;
+    /**
+     * The newest build that recorded this configuration.
+     */
+    private final Build latestBuild;
     /**
      * Conversion from escaped test case names to original test case names,
      * since test case names may contain URL-unsafe characters.
      */
     private final Map<String,String> testCaseNames = new HashMap<String, String>();
 
-    TrendReport(Project project, String configName, HudsonChartGenerator chartGen) {
+    TrendReport(Project project, String configName, Build latestBuild, HudsonChartGenerator chartGen) {
         this.project = project;
         this.configName = configName;
+        this.latestBuild = latestBuild;
         this.chartGen = chartGen;
         for (String name : chartGen.getTestNames()) {
             testCaseNames.put( name.replace('/','_'), name );
@@ -55,6 +66,34 @@ public class TrendReport implements ModelObject {
         return project;
     }
 
+    /**
+     * Gets the test cases whose results were too noisy to be trusted
+     * in the latest build that recorded this configuration.
+     *
+     * @return can be empty but never null.
+     */
+    public List<TestCaseStats> getFlakyTestCases() {
+        if(latestBuild==null)
+            return Collections.emptyList();
+        File f = StabilityReport.getFile(JapexPublisher.getJapexReport(latestBuild),configName);
+        try {
+            StabilityReport r = StabilityReport.load(f);
+            if(r!=null)
+                return r.getFlakyTestCases(getNoiseThreshold());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING,"Failed to load "+f,e);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Gets the noise threshold configured on the project.
+     */
+    public double getNoiseThreshold() {
+        JapexPublisher pub = (JapexPublisher)project.getPublishersList().get(JapexPublisher.DESCRIPTOR);
+        return pub!=null ? pub.getNoiseThreshold() : JapexPublisher.DEFAULT_NOISE_THRESHOLD;
+    }
+
 //
 //
 // Web methods
@@ -92,4 +131,6 @@ public class TrendReport implements ModelObject {
 
         ChartUtil.generateGraph(req,rsp,chartGen.createTrendChart(mean),400,200);
     }
+
+    private static final Logger LOGGER = Logger.getLogger(TrendReport.class.getName());
 }
@@ -0,0 +1,57 @@
+package hudson.plugins.japex;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeMap;
+
+public class BaselineIndexTest extends TestCase {
+    public void testEarlierBuildsExcludeCurrent() {
+        TreeMap<Integer,Double> builds = scores(1,10.0, 3,30.0, 5,50.0, 7,70.0);
+        assertEquals(Arrays.asList(5,3,1), BaselineIndex.getEarlierBuilds(builds,7));
+        assertEquals(Arrays.asList(5,3,1), BaselineIndex.getEarlierBuilds(builds,6));
+        assertEquals(Collections.<Integer>emptyList(), BaselineIndex.getEarlierBuilds(builds,1));
+    }
+
+    public void testPickBestHigherIsBetter() {
+        TreeMap<Integer,Double> builds = scores(1,10.0, 2,30.0, 3,20.0);
+        assertEquals(Integer.valueOf(2), BaselineIndex.pick(Arrays.asList(3,2,1),builds,false,true));
+    }
+
+    public void testPickBestLowerIsBetter() {
+        TreeMap<Integer,Double> builds = scores(1,10.0, 2,30.0, 3,20.0);
+        assertEquals(Integer.valueOf(1), BaselineIndex.pick(Arrays.asList(3,2,1),builds,true,true));
+    }
+
+    public void testPickMedian() {
+        TreeMap<Integer,Double> builds = scores(1,10.0, 2,30.0, 3,20.0, 4,40.0, 5,50.0);
+        assertEquals(Integer.valueOf(2), BaselineIndex.pick(Arrays.asList(5,4,3,2,1),builds,false,false));
+        assertEquals(Integer.valueOf(2), BaselineIndex.pick(Arrays.asList(5,4,3,2,1),builds,true,false));
+        // the median of an even number of builds is the lower one in the order of goodness
+        assertEquals(Integer.valueOf(3), BaselineIndex.pick(Arrays.asList(4,3,2,1),builds,false,false));
+        assertEquals(Integer.valueOf(2), BaselineIndex.pick(Arrays.asList(4,3,2,1),builds,true,false));
+    }
+
+    public void testPickNoCandidate() {
+        assertNull(BaselineIndex.pick(Collections.<Integer>emptyList(),scores(),false,true));
+    }
+
+    public void testTrimKeepsNewestAndPinned() {
+        TreeMap<Integer,Double> builds = scores(1,1.0, 2,2.0, 3,3.0, 4,4.0, 5,5.0);
+        BaselineIndex.trim(builds,2,1);
+        assertEquals(Arrays.asList(1,5), new ArrayList<Integer>(builds.keySet()));
+
+        builds = scores(1,1.0, 2,2.0, 3,3.0);
+        BaselineIndex.trim(builds,2,0);
+        assertEquals(Arrays.asList(2,3), new ArrayList<Integer>(builds.keySet()));
+    }
+
+    private static TreeMap<Integer,Double> scores(Object... pairs) {
+        TreeMap<Integer,Double> r = new TreeMap<Integer,Double>();
+        for (int i=0; i<pairs.length; i+=2)
+            r.put((Integer)pairs[i],(Double)pairs[i+1]);
+        return r;
+    }
+}
@@ -0,0 +1,105 @@
+package hudson.plugins.japex;
+
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import org.jvnet.hudson.test.HudsonTestCase;
+import org.jvnet.hudson.test.TestBuilder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Tests {@link BaselineIndex#findBaseline} against a project with these builds:
+ *
+ * <ol>
+ * <li>success, mean 10
+ * <li>failure, mean 50
+ * <li>success, mean 30
+ * <li>success, no report. the build being recorded.
+ * </ol>
+ */
+public class BaselineSelectionTest extends HudsonTestCase {
+    private static final String CONFIG = "config.parsing.xml";
+
+    private FreeStyleProject p;
+    private FreeStyleBuild b1, b2, b3, b4;
+    private Result nextResult;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        p = createFreeStyleProject();
+        p.getBuildersList().add(new TestBuilder() {
+            public boolean perform(AbstractBuild<?,?> build, Launcher launcher, BuildListener listener) {
+                build.setResult(nextResult);
+                return true;
+            }
+        });
+
+        b1 = build(Result.SUCCESS);
+        writeReport(b1,10);
+        b2 = build(Result.FAILURE);
+        writeReport(b2,50);
+        b3 = build(Result.SUCCESS);
+        writeReport(b3,30);
+        b4 = build(Result.SUCCESS);
+    }
+
+    public void testLastWithConfigSkipsFailedBuilds() throws Exception {
+        assertSame(b3, find(BaselineIndex.load(p), BaselineMode.LAST_WITH_CONFIG, 0));
+    }
+
+    public void testBestAndMedian() throws Exception {
+        BaselineIndex index = BaselineIndex.load(p);
+        // the failed build #2 has the best mean, but is never a candidate
+        assertSame(b3, find(index, BaselineMode.BEST_OF_LAST, 0));
+        assertSame(b1, find(index, BaselineMode.MEDIAN_OF_LAST, 0));
+    }
+
+    public void testPinned() throws Exception {
+        BaselineIndex index = BaselineIndex.load(p);
+        assertSame(b1, find(index, BaselineMode.PINNED, 1));
+        assertNull(find(index, BaselineMode.PINNED, 4));
+        assertNull(find(index, BaselineMode.PINNED, 99));
+        // a pinned build that isn't in the index is found from its archive
+        assertSame(b1, find(new BaselineIndex(), BaselineMode.PINNED, 1));
+    }
+
+    public void testPrevious() throws Exception {
+        assertSame(b3, find(BaselineIndex.load(p), BaselineMode.PREVIOUS, 0));
+        // a previous build that isn't in the index is found from its archive
+        assertSame(b3, find(new BaselineIndex(), BaselineMode.PREVIOUS, 0));
+        // but not if it doesn't have the configuration
+        assertNull(new BaselineIndex().findBaseline(b4, "other.xml", BaselineMode.PREVIOUS, 0, 5));
+    }
+
+    public void testIndexBuild() throws Exception {
+        assertEquals(1, BaselineIndex.index(b1));
+        assertEquals(0, BaselineIndex.index(b4));
+    }
+
+    private AbstractBuild<?,?> find(BaselineIndex index, BaselineMode mode, int pinnedBuild) {
+        return index.findBaseline(b4, CONFIG, mode, pinnedBuild, 5);
+    }
+
+    private FreeStyleBuild build(Result result) throws Exception {
+        nextResult = result;
+        return p.scheduleBuild2(0).get();
+    }
+
+    private void writeReport(AbstractBuild<?,?> build, double mean) throws IOException {
+        File dir = JapexPublisher.getJapexReport(build);
+        dir.mkdirs();
+        FileWriter w = new FileWriter(new File(dir,CONFIG));
+        w.write("<testSuiteReport xmlns='http://www.sun.com/japex/testSuiteReport'>"
+                +"<configFile>config/parsing.xml</configFile>"
+                +"<driver name='sax'><resultAritMean>"+mean+"</resultAritMean></driver>"
+                +"</testSuiteReport>");
+        w.close();
+    }
+}
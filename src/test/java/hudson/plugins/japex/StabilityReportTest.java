@@ -0,0 +1,61 @@
+package hudson.plugins.japex;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.List;
+
+public class StabilityReportTest extends TestCase {
+    public void testParse() throws Exception {
+        StabilityReport r = StabilityReport.parse(getResource("report.xml"));
+        assertEquals(2, r.getTestCases().size());
+
+        // runsPerDriver from the suite, without the warmup run
+        TestCaseStats s = r.getTestCase("sax","small.xml");
+        assertEquals(10.0, s.getMean(), 1e-9);
+        assertEquals(0.1, s.getStddev(), 1e-9);
+        assertEquals(2, s.getRuns());
+
+        // no stddev
+        assertNull(r.getTestCase("sax","single.xml"));
+
+        // runsPerDriver from the driver, with the warmup run
+        s = r.getTestCase("dom","small.xml");
+        assertEquals(25.0, s.getMean(), 1e-9);
+        assertEquals(5, s.getRuns());
+
+        // runsPerDriver from the test case, leaving only one counted run
+        assertNull(r.getTestCase("dom","large.xml"));
+    }
+
+    public void testRegressedTestCases() throws Exception {
+        List<String[]> r = StabilityReport.getRegressedTestCases(getResource("report.xml.regression"),5);
+        assertEquals(2, r.size());
+        assertEquals("sax", r.get(0)[0]);
+        assertEquals("small.xml", r.get(0)[1]);
+        assertEquals("dom", r.get(1)[0]);
+        assertEquals("small.xml", r.get(1)[1]);
+    }
+
+    public void testDoctypeIsRejected() throws Exception {
+        File f = File.createTempFile("japex","xml");
+        try {
+            FileWriter w = new FileWriter(f);
+            w.write("<!DOCTYPE r [<!ENTITY e SYSTEM 'file:///etc/passwd'>]><r>&e;</r>");
+            w.close();
+            StabilityReport.parse(f);
+            fail();
+        } catch (IOException e) {
+            // expected
+        } finally {
+            f.delete();
+        }
+    }
+
+    private File getResource(String name) throws URISyntaxException {
+        return new File(getClass().getResource(name).toURI());
+    }
+}
@@ -0,0 +1,81 @@
+package hudson.plugins.japex;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TestCaseStatsTest extends TestCase {
+    public void testHalfWidth() {
+        assertEquals(12.706/Math.sqrt(2), stats(10,1,2).getHalfWidth(), 1e-9);
+        assertEquals(2.042/Math.sqrt(31), stats(10,1,31).getHalfWidth(), 1e-9);
+        assertEquals(1.960/10, stats(10,1,100).getHalfWidth(), 1e-9);
+        assertTrue(Double.isInfinite(stats(10,1,1).getHalfWidth()));
+    }
+
+    public void testConfidenceInterval() {
+        TestCaseStats s = stats(10,1,100);
+        assertEquals(10-0.196, s.getConfidenceLow(), 1e-9);
+        assertEquals(10+0.196, s.getConfidenceHigh(), 1e-9);
+        assertEquals(1.0, s.getVariance(), 1e-9);
+    }
+
+    public void testDisplayStrings() {
+        TestCaseStats s = stats(10,1,100);
+        assertEquals("10", s.getMeanString());
+        assertEquals("1", s.getStddevString());
+        assertEquals("9.804 - 10.2", s.getConfidenceIntervalString());
+        assertEquals("0.0001235", stats(0.00012345678,0,2).getMeanString());
+    }
+
+    public void testOverlaps() {
+        assertTrue(stats(10,1,100).overlaps(stats(10.3,1,100)));
+        assertTrue(stats(10.3,1,100).overlaps(stats(10,1,100)));
+        assertFalse(stats(10,1,100).overlaps(stats(11,1,100)));
+        assertFalse(stats(11,1,100).overlaps(stats(10,1,100)));
+    }
+
+    public void testStabilityScore() {
+        assertEquals(100, stats(10,0,5).getStabilityScore());
+        assertEquals(98, stats(10,1,100).getStabilityScore());
+        assertEquals(0, stats(1,10,2).getStabilityScore());
+    }
+
+    public void testStabilityScoreOfZeroMean() {
+        assertEquals(100, stats(0,0,5).getStabilityScore());
+        assertEquals(0, stats(0,1,5).getStabilityScore());
+        assertTrue(stats(0,1,5).isFlaky(5));
+    }
+
+    public void testFlaky() {
+        // relative half width is 1.96%
+        assertFalse(stats(10,1,100).isFlaky(5));
+        assertTrue(stats(10,1,100).isFlaky(1));
+    }
+
+    public void testIndistinguishableFrom() {
+        StabilityReport base = new StabilityReport(Arrays.asList(
+                new TestCaseStats("d","a",10,1,100), new TestCaseStats("d","b",10,1,100)));
+        StabilityReport cur = new StabilityReport(Arrays.asList(
+                new TestCaseStats("d","a",10.3,1,100), new TestCaseStats("d","b",20,1,100)));
+
+        assertTrue(cur.isIndistinguishableFrom(base, regressed("a")));
+        // an unrelated test case moving doesn't matter, but a regressed one does
+        assertFalse(cur.isIndistinguishableFrom(base, regressed("a","b")));
+        // a regressed test case without noise data is conclusive
+        assertFalse(cur.isIndistinguishableFrom(base, regressed("a","c")));
+        assertFalse(cur.isIndistinguishableFrom(base, Collections.<String[]>emptyList()));
+    }
+
+    private static List<String[]> regressed(String... testCases) {
+        String[][] r = new String[testCases.length][];
+        for (int i=0; i<testCases.length; i++)
+            r[i] = new String[]{"d",testCases[i]};
+        return Arrays.asList(r);
+    }
+
+    private static TestCaseStats stats(double mean, double stddev, int runs) {
+        return new TestCaseStats("d","t",mean,stddev,runs);
+    }
+}